@@ -0,0 +1,64 @@
+package kacharino.communicate;
+
+import java.nio.ByteBuffer;
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Ein einfacher Pool für Direct-ByteBuffer. Die TLS-Verbindungen holen sich ihre
+ * Netzwerk- und Anwendungspuffer hier ab, statt pro Verbindung neuen Speicher
+ * zu allozieren, und geben sie beim Schließen wieder zurück.
+ * <p>
+ * Pro Puffergröße werden höchstens {@code maxPerSize} freie Puffer vorgehalten,
+ * überzählige Puffer werden dem Garbage Collector überlassen.
+ */
+public class BufferPool {
+
+    private final Map<Integer, BlockingQueue<ByteBuffer>> freeBuffers;
+    private final int maxPerSize;
+
+    /**
+     * Erzeugt einen neuen Pool.
+     *
+     * @param maxPerSize maximale Anzahl freier Puffer, die je Größe aufbewahrt werden
+     */
+    public BufferPool(int maxPerSize) {
+        this.freeBuffers = new ConcurrentHashMap<>();
+        this.maxPerSize = maxPerSize;
+    }
+
+    /**
+     * Liefert einen geleerten Puffer mit genau der angegebenen Kapazität.
+     *
+     * @param capacity gewünschte Kapazität in Bytes
+     * @return ein Puffer aus dem Pool oder ein neu allozierter Direct-Buffer
+     */
+    public ByteBuffer acquire(int capacity) {
+        ByteBuffer buffer = queueFor(capacity).poll();
+        if (buffer == null) {
+            return ByteBuffer.allocateDirect(capacity);
+        }
+        buffer.clear();
+        return buffer;
+    }
+
+    /**
+     * Gibt einen Puffer an den Pool zurück. Nach dem Aufruf darf der Aufrufer
+     * den Puffer nicht mehr verwenden.
+     *
+     * @param buffer der freizugebende Puffer (null wird ignoriert)
+     */
+    public void release(ByteBuffer buffer) {
+        if (buffer == null || !buffer.isDirect()) {
+            return;
+        }
+        buffer.clear();
+        queueFor(buffer.capacity()).offer(buffer);
+    }
+
+    private BlockingQueue<ByteBuffer> queueFor(int capacity) {
+        return freeBuffers.computeIfAbsent(capacity, c -> new ArrayBlockingQueue<>(maxPerSize));
+    }
+}
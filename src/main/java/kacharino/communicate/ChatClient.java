@@ -3,24 +3,50 @@ package kacharino.communicate;
 import javafx.application.Platform;
 import javafx.stage.Stage;
 
+import javax.net.ssl.SSLContext;
 import java.io.BufferedReader;
 import java.io.IOException;
 import java.io.InputStreamReader;
 import java.io.PrintWriter;
+import java.net.InetSocketAddress;
 import java.net.Socket;
+import java.nio.channels.SocketChannel;
 
 /**
  * Der ChatClient stellt eine Verbindung zum Server her und empfängt fortlaufend
  * Nachrichten, die anschließend an die MessengerApp (JavaFX-GUI) weitergeleitet werden.
  * <p>
  * Standardmäßig wird versucht, sich mit der IP 127.0.0.1:9696 zu verbinden.
+ * Wird ein SSLContext übergeben, läuft die Verbindung über TLS.
  */
 public class ChatClient implements Runnable {
 
+    private static final String HOST = "127.0.0.1";
+    private static final int PORT = 9696;
+
+    private final SSLContext sslContext;
     private Socket client;
     private BufferedReader in;
     private PrintWriter out;
 
+    /**
+     * Erzeugt einen Client, der unverschlüsselt mit dem Server kommuniziert.
+     */
+    public ChatClient() {
+        this(null);
+    }
+
+    /**
+     * Erzeugt einen Client, der über TLS mit dem Server kommuniziert. Wird derselbe
+     * SSLContext für spätere Verbindungen wiederverwendet, kann die TLS-Sitzung
+     * ohne vollständigen Handshake wiederaufgenommen werden.
+     *
+     * @param sslContext Kontext mit Truststore oder null für Klartext
+     */
+    public ChatClient(SSLContext sslContext) {
+        this.sslContext = sslContext;
+    }
+
     /**
      * Hauptmethode des Clients: Stellt eine Verbindung zum Server her und
      * lauscht auf eingehende Nachrichten. Eingehende Texte werden
@@ -31,9 +57,17 @@ public class ChatClient implements Runnable {
     @Override
     public void run() {
         try {
-            client = new Socket("127.0.0.1", 9696);
-            out = new PrintWriter(client.getOutputStream(), true);
-            in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, PORT));
+            client = channel.socket();
+            if (sslContext != null) {
+                TlsChannel tls = TlsChannel.forClient(channel, sslContext, HOST, PORT);
+                tls.handshake();
+                out = new PrintWriter(tls.getOutputStream(), true);
+                in = new BufferedReader(new InputStreamReader(tls.getInputStream()));
+            } else {
+                out = new PrintWriter(client.getOutputStream(), true);
+                in = new BufferedReader(new InputStreamReader(client.getInputStream()));
+            }
 
             // Informiert die MessengerApp, dass dieser Client bereit ist
             Platform.runLater(() -> MessengerApp.setClient(this));
@@ -78,6 +112,8 @@ public class ChatClient implements Runnable {
     /**
      * Startet die JavaFX-Anwendung sowie den ChatClient in einem eigenen Thread.
      * Hiermit lässt sich der Client eigenständig (ohne separate GUI) testen.
+     * Ist ein Truststore per System-Property konfiguriert (siehe {@link TlsConfig}),
+     * verbindet sich der Client über TLS.
      *
      * @param args nicht genutzt
      */
@@ -93,7 +129,13 @@ public class ChatClient implements Runnable {
             }
 
             // Erzeugt und startet den ChatClient
-            ChatClient client = new ChatClient();
+            ChatClient client;
+            try {
+                client = new ChatClient(TlsConfig.fromSystemProperties());
+            } catch (IOException e) {
+                e.printStackTrace();
+                return;
+            }
             Thread clientThread = new Thread(client);
             clientThread.start();
         });
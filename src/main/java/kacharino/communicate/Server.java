@@ -1,8 +1,11 @@
 package kacharino.communicate;
 
+import javax.net.ssl.SSLContext;
 import java.io.*;
+import java.net.InetSocketAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
+import java.nio.channels.ServerSocketChannel;
 import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.List;
 import java.util.Map;
@@ -16,6 +19,9 @@ import java.util.concurrent.ConcurrentHashMap;
  * Der Server speichert alle gesendeten Nachrichten in einer Datei (chat_history.txt).
  * Zusätzlich verwaltet er mithilfe einer UserManager-Instanz die Registrierung
  * und das Login von Benutzern (users.txt).
+ * <p>
+ * Optional läuft die Kommunikation verschlüsselt über TLS (siehe {@link TlsConfig}).
+ * Der Handshake findet im ConnectionHandler-Thread statt, nicht im Accept-Thread.
  */
 public class Server implements Runnable {
 
@@ -27,21 +33,61 @@ public class Server implements Runnable {
 
     private final File chatHistoryFile;
     private final UserManager userManager;
+    private final SSLContext sslContext;
+
+    /**
+     * Maximale Dauer eines TLS-Handshakes, bevor die Verbindung verworfen wird.
+     */
+    private static final int HANDSHAKE_TIMEOUT_MILLIS = 10_000;
 
     /**
      * Erstellt einen neuen Server-Socket auf dem angegebenen Port und bereitet
-     * die nötigen Datenstrukturen für den Chatbetrieb vor.
+     * die nötigen Datenstrukturen für den Chatbetrieb vor. Die Verbindungen
+     * laufen unverschlüsselt.
      *
      * @param port der Port, auf dem der Server lauschen soll
      * @throws IOException falls der ServerSocket nicht geöffnet werden kann
      */
     public Server(int port) throws IOException {
-        this.server = new ServerSocket(port);
+        this(port, null);
+    }
+
+    /**
+     * Erstellt einen neuen Server-Socket auf dem angegebenen Port. Ist ein
+     * SSLContext angegeben, werden alle Verbindungen über TLS abgewickelt.
+     *
+     * @param port       der Port, auf dem der Server lauschen soll
+     * @param sslContext Kontext mit Server-Zertifikat oder null für Klartext
+     * @throws IOException falls der ServerSocket nicht geöffnet werden kann
+     */
+    public Server(int port, SSLContext sslContext) throws IOException {
+        this(port, sslContext, new File("."));
+    }
+
+    /**
+     * Erstellt einen Server, der Chatverlauf und Benutzerdaten im angegebenen Verzeichnis ablegt.
+     *
+     * @param port       der Port, auf dem der Server lauschen soll (0 = beliebiger freier Port)
+     * @param sslContext Kontext mit Server-Zertifikat oder null für Klartext
+     * @param dataDir    Verzeichnis für chat_history.txt und users.txt
+     * @throws IOException falls der ServerSocket nicht geöffnet werden kann
+     */
+    Server(int port, SSLContext sslContext, File dataDir) throws IOException {
+        // Über einen Channel geöffnet, damit die angenommenen Sockets einen SocketChannel für TLS besitzen
+        this.server = ServerSocketChannel.open().bind(new InetSocketAddress(port)).socket();
+        this.sslContext = sslContext;
         this.isRunning = true;
         this.connections = new CopyOnWriteArrayList<>();
         this.userMap = new ConcurrentHashMap<>();
-        this.chatHistoryFile = new File("chat_history.txt");
-        this.userManager = new UserManager("users.txt");
+        this.chatHistoryFile = new File(dataDir, "chat_history.txt");
+        this.userManager = new UserManager(new File(dataDir, "users.txt").getPath());
+    }
+
+    /**
+     * @return der tatsächlich gebundene Port
+     */
+    int getPort() {
+        return server.getLocalPort();
     }
 
     /**
@@ -57,8 +103,8 @@ public class Server implements Runnable {
         while (isRunning) {
             try {
                 Socket client = server.accept();
+                // Der Handler trägt sich erst nach dem (TLS-)Verbindungsaufbau in connections ein
                 ConnectionHandler handler = new ConnectionHandler(client);
-                connections.add(handler);
                 new Thread(handler).start();
             } catch (IOException e) {
                 if (isRunning) {
@@ -198,8 +244,17 @@ public class Server implements Runnable {
         @Override
         public void run() {
             try {
-                in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
-                out = new PrintWriter(socket.getOutputStream(), true);
+                if (sslContext != null) {
+                    TlsChannel tls = TlsChannel.forServer(socket.getChannel(), sslContext);
+                    tls.handshake(HANDSHAKE_TIMEOUT_MILLIS);
+                    in = new BufferedReader(new InputStreamReader(tls.getInputStream()));
+                    out = new PrintWriter(tls.getOutputStream(), true);
+                } else {
+                    in = new BufferedReader(new InputStreamReader(socket.getInputStream()));
+                    out = new PrintWriter(socket.getOutputStream(), true);
+                }
+                // Erst jetzt empfängt der Handler Broadcasts, vorher ist out noch nicht gesetzt
+                connections.add(this);
 
                 out.println("Welcome to the Chat Server!");
                 out.println("Use: /login <user> <pass> or /register <user> <pass>");
@@ -330,13 +385,14 @@ public class Server implements Runnable {
 
     /**
      * Einstiegspunkt des Programms: Erzeugt einen Server auf Port 9696 und
-     * startet ihn in einem eigenen Thread.
+     * startet ihn in einem eigenen Thread. Ist ein Keystore per System-Property
+     * konfiguriert (siehe {@link TlsConfig}), läuft der Server im TLS-Modus.
      *
      * @param args nicht verwendet
      */
     public static void main(String[] args) {
         try {
-            Server server = new Server(9696);
+            Server server = new Server(9696, TlsConfig.fromSystemProperties());
             new Thread(server).start();
         } catch (IOException e) {
             e.printStackTrace();
@@ -0,0 +1,501 @@
+package kacharino.communicate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLEngine;
+import javax.net.ssl.SSLEngineResult;
+import javax.net.ssl.SSLEngineResult.HandshakeStatus;
+import javax.net.ssl.SSLException;
+import javax.net.ssl.SSLParameters;
+import javax.net.ssl.SSLSession;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InterruptedIOException;
+import java.io.OutputStream;
+import java.net.SocketTimeoutException;
+import java.nio.ByteBuffer;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.locks.ReentrantLock;
+
+/**
+ * Eine TLS-Verbindung auf Basis von {@link SSLEngine} über einem blockierenden {@link SocketChannel}.
+ * <p>
+ * Die rechenintensiven Handshake-Aufgaben (Delegated Tasks) laufen auf einem gemeinsamen
+ * Worker-Pool, sodass die Anzahl gleichzeitig ausgeführter Handshake-Berechnungen auf die
+ * Anzahl der CPU-Kerne begrenzt ist. Netzwerk- und Anwendungspuffer stammen aus einem
+ * {@link BufferPool}; ausgehende Nachrichten werden direkt in den gepoolten Netzwerkpuffer
+ * verschlüsselt und von dort geschrieben.
+ * <p>
+ * Über {@link #getInputStream()} und {@link #getOutputStream()} lässt sich die Verbindung wie
+ * ein normaler Socket mit BufferedReader/PrintWriter nutzen. Lesen und Schreiben dürfen
+ * gleichzeitig aus verschiedenen Threads erfolgen: Ein Leser wartet nie auf den Schreib-Lock.
+ * Muss nach dem Handshake eine Handshake-Nachricht gesendet werden (z. B. die Antwort auf ein
+ * KeyUpdate), sendet der Leser sie nur, wenn der Schreib-Lock frei ist; andernfalls übernimmt
+ * das der aktuelle Schreiber, sobald er den Lock freigibt. Ein Schreiber, der blockiert, weil die
+ * Gegenseite nicht mehr liest, hält also nur andere Schreiber auf; {@link #close()} löst ihn.
+ */
+public class TlsChannel {
+
+    private static final ExecutorService HANDSHAKE_WORKERS = Executors.newFixedThreadPool(
+            Runtime.getRuntime().availableProcessors(), runnable -> {
+                Thread thread = new Thread(runnable, "tls-handshake-worker");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final ScheduledExecutorService HANDSHAKE_TIMER = Executors.newSingleThreadScheduledExecutor(
+            runnable -> {
+                Thread thread = new Thread(runnable, "tls-handshake-timer");
+                thread.setDaemon(true);
+                return thread;
+            });
+
+    private static final BufferPool BUFFER_POOL = new BufferPool(256);
+    private static final ByteBuffer EMPTY = ByteBuffer.allocate(0);
+
+    private final SocketChannel channel;
+    private final SSLEngine engine;
+
+    // Zugriff auf netIn/appIn nur unter inboundLock, auf netOut nur unter outboundLock.
+    // netIn und appIn sind stets im Lesemodus (position..limit = noch nicht verarbeitete Daten).
+    private final Object inboundLock = new Object();
+    private final ReentrantLock outboundLock = new ReentrantLock();
+    private ByteBuffer netIn;
+    private ByteBuffer appIn;
+    private ByteBuffer netOut;
+
+    private final AtomicBoolean closed = new AtomicBoolean();
+
+    private TlsChannel(SocketChannel channel, SSLEngine engine) {
+        this.channel = channel;
+        this.engine = engine;
+
+        int packetSize = engine.getSession().getPacketBufferSize();
+        this.netIn = BUFFER_POOL.acquire(packetSize).flip();
+        this.appIn = BUFFER_POOL.acquire(engine.getSession().getApplicationBufferSize()).flip();
+        this.netOut = BUFFER_POOL.acquire(packetSize);
+    }
+
+    /**
+     * Erzeugt die Server-Seite einer TLS-Verbindung für einen angenommenen Client.
+     *
+     * @param channel    der verbundene Kanal (blockierender Modus)
+     * @param sslContext Kontext mit Server-Zertifikat
+     * @return die noch nicht ausgehandelte TLS-Verbindung
+     */
+    public static TlsChannel forServer(SocketChannel channel, SSLContext sslContext) {
+        SSLEngine engine = sslContext.createSSLEngine();
+        engine.setUseClientMode(false);
+        return new TlsChannel(channel, engine);
+    }
+
+    /**
+     * Erzeugt die Client-Seite einer TLS-Verbindung. Host und Port dienen als Schlüssel für den
+     * Session-Cache des Kontexts, damit spätere Verbindungen die Sitzung wiederaufnehmen können,
+     * und zur Prüfung des Hostnamens im Server-Zertifikat.
+     *
+     * @param channel    der verbundene Kanal (blockierender Modus)
+     * @param sslContext Kontext mit Truststore
+     * @param host       Hostname bzw. IP des Servers
+     * @param port       Port des Servers
+     * @return die noch nicht ausgehandelte TLS-Verbindung
+     */
+    public static TlsChannel forClient(SocketChannel channel, SSLContext sslContext, String host, int port) {
+        SSLEngine engine = sslContext.createSSLEngine(host, port);
+        engine.setUseClientMode(true);
+        SSLParameters params = engine.getSSLParameters();
+        params.setEndpointIdentificationAlgorithm("HTTPS");
+        engine.setSSLParameters(params);
+        return new TlsChannel(channel, engine);
+    }
+
+    /**
+     * Führt den TLS-Handshake blockierend durch. Muss vor der Nutzung der Streams aufgerufen werden.
+     * Schlägt der Handshake fehl, wird die Verbindung geschlossen (inklusive Alert an die Gegenseite)
+     * und die Puffer gehen an den Pool zurück.
+     *
+     * @throws IOException falls der Handshake fehlschlägt oder die Gegenseite die Verbindung schließt
+     */
+    public void handshake() throws IOException {
+        boolean finished = false;
+        try {
+            doHandshake();
+            finished = true;
+        } finally {
+            if (!finished) {
+                closeQuietly();
+            }
+        }
+    }
+
+    /**
+     * Wie {@link #handshake()}, bricht aber ab, wenn der Handshake nicht innerhalb der angegebenen
+     * Zeit abgeschlossen ist (z. B. weil die Gegenseite nie ein ClientHello schickt). Die Verbindung
+     * wird in diesem Fall geschlossen.
+     *
+     * @param timeoutMillis maximale Dauer des Handshakes in Millisekunden
+     * @throws SocketTimeoutException falls der Handshake zu lange dauert
+     * @throws IOException            falls der Handshake fehlschlägt
+     */
+    public void handshake(int timeoutMillis) throws IOException {
+        AtomicBoolean timedOut = new AtomicBoolean();
+        ScheduledFuture<?> timer = HANDSHAKE_TIMER.schedule(() -> {
+            timedOut.set(true);
+            closeQuietly();
+        }, timeoutMillis, TimeUnit.MILLISECONDS);
+        try {
+            handshake();
+        } catch (IOException e) {
+            timer.cancel(false);
+            if (timedOut.get()) {
+                SocketTimeoutException timeout = new SocketTimeoutException("TLS handshake timed out");
+                timeout.initCause(e);
+                throw timeout;
+            }
+            throw e;
+        }
+        // Timer bereits gelaufen: Verbindung wurde (oder wird gerade) geschlossen
+        if (!timer.cancel(false)) {
+            throw new SocketTimeoutException("TLS handshake timed out");
+        }
+    }
+
+    private void doHandshake() throws IOException {
+        engine.beginHandshake();
+        HandshakeStatus status = engine.getHandshakeStatus();
+        while (status != HandshakeStatus.FINISHED && status != HandshakeStatus.NOT_HANDSHAKING) {
+            switch (status) {
+                case NEED_TASK -> runDelegatedTasks();
+                case NEED_WRAP -> wrap(EMPTY);
+                default -> {
+                    synchronized (inboundLock) {
+                        SSLEngineResult result = unwrap();
+                        switch (result.getStatus()) {
+                            case BUFFER_UNDERFLOW -> {
+                                if (readFromChannel() < 0) {
+                                    throw new EOFException("Connection closed during TLS handshake");
+                                }
+                            }
+                            case CLOSED -> throw new SSLException("TLS engine closed during handshake");
+                            default -> {
+                                // OK oder BUFFER_OVERFLOW (bereits in unwrap() behandelt)
+                            }
+                        }
+                    }
+                }
+            }
+            status = engine.getHandshakeStatus();
+        }
+    }
+
+    /**
+     * @return die ausgehandelte TLS-Sitzung
+     */
+    public SSLSession getSession() {
+        return engine.getSession();
+    }
+
+    /**
+     * @return ein InputStream, der die entschlüsselten Anwendungsdaten liefert
+     */
+    public InputStream getInputStream() {
+        return new InputStream() {
+            @Override
+            public int read() throws IOException {
+                byte[] single = new byte[1];
+                int n = read(single, 0, 1);
+                return n < 0 ? -1 : single[0] & 0xFF;
+            }
+
+            @Override
+            public int read(byte[] b, int off, int len) throws IOException {
+                return TlsChannel.this.read(b, off, len);
+            }
+
+            @Override
+            public int available() {
+                synchronized (inboundLock) {
+                    return closed.get() ? 0 : appIn.remaining();
+                }
+            }
+
+            @Override
+            public void close() throws IOException {
+                TlsChannel.this.close();
+            }
+        };
+    }
+
+    /**
+     * @return ein OutputStream, dessen Daten pro write-Aufruf verschlüsselt und gesendet werden
+     */
+    public OutputStream getOutputStream() {
+        return new OutputStream() {
+            @Override
+            public void write(int b) throws IOException {
+                write(new byte[]{(byte) b}, 0, 1);
+            }
+
+            @Override
+            public void write(byte[] b, int off, int len) throws IOException {
+                if (closed.get()) {
+                    throw new IOException("TLS channel closed");
+                }
+                wrap(ByteBuffer.wrap(b, off, len));
+            }
+
+            @Override
+            public void close() throws IOException {
+                TlsChannel.this.close();
+            }
+        };
+    }
+
+    /**
+     * Sendet close_notify an die Gegenseite, schließt den Kanal und gibt die Puffer an den Pool zurück.
+     * Ist gerade ein Schreibvorgang aktiv (z. B. weil die Gegenseite nicht mehr liest), wird auf
+     * close_notify verzichtet und der Kanal sofort geschlossen. Mehrfache Aufrufe sind unschädlich.
+     */
+    public void close() throws IOException {
+        if (!closed.compareAndSet(false, true)) {
+            return;
+        }
+        try {
+            if (outboundLock.tryLock()) {
+                try {
+                    engine.closeOutbound();
+                    wrapLocked(EMPTY);
+                } catch (IOException e) {
+                    // Gegenseite bereits weg, close_notify nicht zustellbar
+                } finally {
+                    outboundLock.unlock();
+                }
+            }
+        } finally {
+            // Erst den Kanal schließen, damit blockierte Leser und Schreiber aufwachen und ihre Locks freigeben
+            channel.close();
+            synchronized (inboundLock) {
+                BUFFER_POOL.release(netIn);
+                BUFFER_POOL.release(appIn);
+                netIn = null;
+                appIn = null;
+            }
+            outboundLock.lock();
+            try {
+                BUFFER_POOL.release(netOut);
+                netOut = null;
+            } finally {
+                outboundLock.unlock();
+            }
+        }
+    }
+
+    private void closeQuietly() {
+        try {
+            close();
+        } catch (IOException e) {
+            // ursprünglicher Fehler ist aussagekräftiger
+        }
+    }
+
+    private int read(byte[] b, int off, int len) throws IOException {
+        if (len == 0) {
+            return 0;
+        }
+        synchronized (inboundLock) {
+            if (closed.get()) {
+                return -1;
+            }
+            while (!appIn.hasRemaining()) {
+                if (!fill()) {
+                    return -1;
+                }
+            }
+            int n = Math.min(len, appIn.remaining());
+            appIn.get(b, off, n);
+            return n;
+        }
+    }
+
+    /**
+     * Entschlüsselt so lange eingehende Records, bis Anwendungsdaten vorliegen.
+     *
+     * @return false, wenn die Verbindung beendet wurde
+     */
+    private boolean fill() throws IOException {
+        while (true) {
+            SSLEngineResult result = unwrap();
+            switch (result.getStatus()) {
+                case OK -> {
+                    // z. B. NewSessionTicket oder KeyUpdate nach dem Handshake
+                    if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+                        runDelegatedTasks();
+                    }
+                    flushHandshake();
+                    if (appIn.hasRemaining()) {
+                        return true;
+                    }
+                }
+                case BUFFER_UNDERFLOW -> {
+                    // Vor dem blockierenden Lesen ausstehende Antworten senden, falls die Gegenseite darauf wartet
+                    flushHandshake();
+                    if (readFromChannel() < 0) {
+                        try {
+                            engine.closeInbound();
+                        } catch (SSLException e) {
+                            // Gegenseite hat ohne close_notify geschlossen
+                        }
+                        return false;
+                    }
+                }
+                case CLOSED -> {
+                    return false;
+                }
+                default -> {
+                    // BUFFER_OVERFLOW wurde in unwrap() durch Vergrößern behandelt
+                }
+            }
+        }
+    }
+
+    /**
+     * Sendet ausstehende Handshake-Nachrichten, ohne auf den Schreib-Lock zu warten. Ist der Lock
+     * belegt, ruft dessen Inhaber diese Methode nach dem Freigeben selbst auf (siehe {@link #wrap}),
+     * sodass keine Nachricht liegen bleibt. Darf daher auch unter inboundLock aufgerufen werden.
+     */
+    private void flushHandshake() throws IOException {
+        while (engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP && !closed.get()
+                && outboundLock.tryLock()) {
+            try {
+                if (netOut != null && engine.getHandshakeStatus() == HandshakeStatus.NEED_WRAP) {
+                    wrapLocked(EMPTY);
+                }
+            } finally {
+                outboundLock.unlock();
+            }
+        }
+    }
+
+    /**
+     * Entschlüsselt aus netIn nach appIn. Aufrufer muss inboundLock halten.
+     */
+    private SSLEngineResult unwrap() throws IOException {
+        appIn.compact();
+        SSLEngineResult result;
+        try {
+            result = engine.unwrap(netIn, appIn);
+        } finally {
+            appIn.flip();
+        }
+        if (result.getStatus() == SSLEngineResult.Status.BUFFER_OVERFLOW) {
+            appIn = enlarge(appIn, engine.getSession().getApplicationBufferSize());
+        } else if (result.getStatus() == SSLEngineResult.Status.BUFFER_UNDERFLOW
+                && netIn.remaining() == netIn.capacity()) {
+            netIn = enlarge(netIn, engine.getSession().getPacketBufferSize());
+        }
+        return result;
+    }
+
+    /**
+     * Liest weitere Netzwerkdaten nach netIn. Aufrufer muss inboundLock halten.
+     */
+    private int readFromChannel() throws IOException {
+        netIn.compact();
+        try {
+            return channel.read(netIn);
+        } finally {
+            netIn.flip();
+        }
+    }
+
+    private void wrap(ByteBuffer src) throws IOException {
+        outboundLock.lock();
+        try {
+            if (netOut == null) {
+                throw new IOException("TLS channel closed");
+            }
+            wrapLocked(src);
+        } finally {
+            outboundLock.unlock();
+        }
+        // Handshake-Nachrichten übernehmen, die ein Leser wegen des belegten Locks nicht senden konnte
+        flushHandshake();
+    }
+
+    /**
+     * Verschlüsselt src direkt in den gepoolten netOut-Puffer und schreibt die Records auf den Kanal.
+     * Aufrufer muss outboundLock halten.
+     */
+    private void wrapLocked(ByteBuffer src) throws IOException {
+        while (true) {
+            netOut.clear();
+            SSLEngineResult result = engine.wrap(src, netOut);
+            netOut.flip();
+            switch (result.getStatus()) {
+                case BUFFER_OVERFLOW -> {
+                    // Auch bei leerem src (Handshake, close_notify) erneut versuchen
+                    netOut = enlarge(netOut, engine.getSession().getPacketBufferSize());
+                    continue;
+                }
+                case CLOSED -> {
+                    writeFully(netOut);
+                    if (src.hasRemaining()) {
+                        throw new SSLException("TLS engine closed");
+                    }
+                    return;
+                }
+                default -> writeFully(netOut);
+            }
+            if (result.getHandshakeStatus() == HandshakeStatus.NEED_TASK) {
+                runDelegatedTasks();
+            }
+            if (!src.hasRemaining()) {
+                return;
+            }
+        }
+    }
+
+    private void writeFully(ByteBuffer buffer) throws IOException {
+        while (buffer.hasRemaining()) {
+            channel.write(buffer);
+        }
+    }
+
+    /**
+     * Führt alle anstehenden Handshake-Aufgaben auf dem Worker-Pool aus und wartet auf deren Ende.
+     */
+    private void runDelegatedTasks() throws IOException {
+        List<Future<?>> pending = new ArrayList<>();
+        Runnable task;
+        while ((task = engine.getDelegatedTask()) != null) {
+            pending.add(HANDSHAKE_WORKERS.submit(task));
+        }
+        try {
+            for (Future<?> future : pending) {
+                future.get();
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new InterruptedIOException("Interrupted during TLS handshake");
+        } catch (ExecutionException e) {
+            throw new SSLException("TLS handshake task failed", e.getCause());
+        }
+    }
+
+    private static ByteBuffer enlarge(ByteBuffer buffer, int minCapacity) {
+        ByteBuffer larger = BUFFER_POOL.acquire(Math.max(minCapacity, buffer.capacity() * 2));
+        larger.put(buffer).flip();
+        BUFFER_POOL.release(buffer);
+        return larger;
+    }
+}
@@ -0,0 +1,120 @@
+package kacharino.communicate;
+
+import javax.net.ssl.KeyManagerFactory;
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.TrustManagerFactory;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Erzeugt den SSLContext für den optionalen TLS-Modus von Server und ChatClient.
+ * <p>
+ * Die Konfiguration erfolgt über System-Properties:
+ * <ul>
+ *   <li>{@code communicate.tls.keystore} – PKCS12-Keystore mit Schlüssel und Zertifikat (Server)</li>
+ *   <li>{@code communicate.tls.truststore} – PKCS12-Truststore nur mit dem Server-Zertifikat (Client)</li>
+ *   <li>{@code communicate.tls.password} – Passwort für beide Stores</li>
+ * </ul>
+ * Ist keine der beiden Dateien gesetzt, laufen Server und Client wie bisher im Klartext.
+ * <p>
+ * Der Session-Cache des Kontexts ermöglicht Session-Resumption: Solange ein Client
+ * denselben SSLContext wiederverwendet, werden Reconnects per Session-Ticket (TLS 1.3 PSK)
+ * ohne vollständigen Handshake aufgebaut.
+ */
+public final class TlsConfig {
+
+    public static final String KEYSTORE_PROPERTY = "communicate.tls.keystore";
+    public static final String TRUSTSTORE_PROPERTY = "communicate.tls.truststore";
+    public static final String PASSWORD_PROPERTY = "communicate.tls.password";
+
+    private static final int SESSION_CACHE_SIZE = 4096;
+    private static final int SESSION_TIMEOUT_SECONDS = 24 * 60 * 60;
+
+    private TlsConfig() {
+    }
+
+    /**
+     * Liest die TLS-Konfiguration aus den System-Properties.
+     *
+     * @return der konfigurierte SSLContext oder {@code null}, falls TLS nicht aktiviert ist
+     * @throws IOException falls ein Store nicht gelesen oder der Kontext nicht erzeugt werden kann
+     */
+    public static SSLContext fromSystemProperties() throws IOException {
+        String keyStore = System.getProperty(KEYSTORE_PROPERTY);
+        String trustStore = System.getProperty(TRUSTSTORE_PROPERTY);
+        if (keyStore == null && trustStore == null) {
+            return null;
+        }
+        char[] password = System.getProperty(PASSWORD_PROPERTY, "").toCharArray();
+        return createContext(keyStore == null ? null : Path.of(keyStore),
+                trustStore == null ? null : Path.of(trustStore), password);
+    }
+
+    /**
+     * Erzeugt einen SSLContext aus den angegebenen PKCS12-Dateien.
+     *
+     * @param keyStore   Keystore mit privatem Schlüssel oder {@code null} (reiner Client)
+     * @param trustStore Truststore mit vertrauenswürdigen Zertifikaten oder {@code null}
+     *                   (JDK-Standard-Truststore)
+     * @param password   Passwort für beide Stores
+     * @return ein initialisierter SSLContext mit konfiguriertem Session-Cache
+     * @throws IOException falls ein Store nicht gelesen oder der Kontext nicht erzeugt werden kann
+     */
+    public static SSLContext createContext(Path keyStore, Path trustStore, char[] password) throws IOException {
+        try {
+            return createContext(keyStore == null ? null : loadStore(keyStore, password),
+                    trustStore == null ? null : loadStore(trustStore, password), password);
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not load key store: " + e.getMessage(), e);
+        }
+    }
+
+    /**
+     * Erzeugt einen SSLContext aus bereits geladenen Stores.
+     *
+     * @param keyStore   Keystore mit privatem Schlüssel oder {@code null} (reiner Client)
+     * @param trustStore Truststore mit vertrauenswürdigen Zertifikaten oder {@code null}
+     *                   (JDK-Standard-Truststore)
+     * @param password   Passwort des Schlüssels im Keystore
+     * @return ein initialisierter SSLContext mit konfiguriertem Session-Cache
+     * @throws IOException falls der Kontext nicht erzeugt werden kann
+     */
+    public static SSLContext createContext(KeyStore keyStore, KeyStore trustStore, char[] password) throws IOException {
+        try {
+            KeyManagerFactory kmf = null;
+            if (keyStore != null) {
+                kmf = KeyManagerFactory.getInstance(KeyManagerFactory.getDefaultAlgorithm());
+                kmf.init(keyStore, password);
+            }
+            TrustManagerFactory tmf = null;
+            if (trustStore != null) {
+                tmf = TrustManagerFactory.getInstance(TrustManagerFactory.getDefaultAlgorithm());
+                tmf.init(trustStore);
+            }
+
+            SSLContext context = SSLContext.getInstance("TLS");
+            context.init(kmf == null ? null : kmf.getKeyManagers(),
+                    tmf == null ? null : tmf.getTrustManagers(), null);
+
+            context.getServerSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+            context.getServerSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            context.getClientSessionContext().setSessionCacheSize(SESSION_CACHE_SIZE);
+            context.getClientSessionContext().setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+            return context;
+        } catch (GeneralSecurityException e) {
+            throw new IOException("Could not create TLS context: " + e.getMessage(), e);
+        }
+    }
+
+    private static KeyStore loadStore(Path path, char[] password) throws IOException, GeneralSecurityException {
+        KeyStore store = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(path)) {
+            store.load(in, password);
+        }
+        return store;
+    }
+}
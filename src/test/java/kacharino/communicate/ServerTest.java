@@ -0,0 +1,79 @@
+package kacharino.communicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests für den {@link Server} im TLS-Modus.
+ */
+class ServerTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    @TempDir
+    Path tempDir;
+
+    private TestCertificates certificates;
+    private Server server;
+    private ExecutorService executor;
+
+    @BeforeEach
+    void startServer() throws Exception {
+        certificates = TestCertificates.create(tempDir.resolve("certs"));
+        server = new Server(0, certificates.serverContext(), tempDir.toFile());
+        new Thread(server).start();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void stopServer() {
+        server.shutdown();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void broadcastReachesClientsWhileAnotherClientStallsInHandshake() throws Exception {
+        // Verbindet sich per TCP, schickt aber nie ein ClientHello
+        try (SocketChannel stalled = SocketChannel.open(new InetSocketAddress(HOST, server.getPort()))) {
+            Thread.sleep(200);
+
+            SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, server.getPort()));
+            TlsChannel tls = TlsChannel.forClient(channel, certificates.clientContext(), HOST, server.getPort());
+            tls.handshake();
+            BufferedReader in = new BufferedReader(new InputStreamReader(tls.getInputStream()));
+            PrintWriter out = new PrintWriter(tls.getOutputStream(), true);
+
+            out.println("/register alice secret");
+            out.println("/login alice secret");
+            out.println("hello");
+
+            Future<Boolean> received = executor.submit(() -> {
+                String line;
+                while ((line = in.readLine()) != null) {
+                    if (line.equals("alice: hello")) {
+                        return true;
+                    }
+                }
+                return false;
+            });
+            assertTrue(received.get(5, TimeUnit.SECONDS));
+            assertTrue(stalled.isOpen());
+            tls.close();
+        }
+    }
+}
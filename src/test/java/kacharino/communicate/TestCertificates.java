@@ -0,0 +1,73 @@
+package kacharino.communicate;
+
+import javax.net.ssl.SSLContext;
+import java.io.IOException;
+import java.io.InputStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.security.GeneralSecurityException;
+import java.security.KeyStore;
+
+/**
+ * Erzeugt für Tests und Benchmark ein selbstsigniertes Zertifikat für 127.0.0.1/localhost.
+ * Der Keystore mit privatem Schlüssel ist nur für den Server bestimmt, der Client erhält
+ * einen Truststore, der ausschließlich das Zertifikat enthält.
+ */
+final class TestCertificates {
+
+    static final char[] PASSWORD = "changeit".toCharArray();
+
+    private final KeyStore keyStore;
+    private final KeyStore trustStore;
+
+    private TestCertificates(KeyStore keyStore, KeyStore trustStore) {
+        this.keyStore = keyStore;
+        this.trustStore = trustStore;
+    }
+
+    /**
+     * Erzeugt mit keytool einen PKCS12-Keystore im angegebenen Verzeichnis.
+     *
+     * @param dir Verzeichnis für die Keystore-Datei
+     * @return Keystore und passender Truststore
+     */
+    static TestCertificates create(Path dir) throws IOException, GeneralSecurityException, InterruptedException {
+        Files.createDirectories(dir);
+        Path file = dir.resolve("server.p12");
+        Path keytool = Path.of(System.getProperty("java.home"), "bin", "keytool");
+        Process process = new ProcessBuilder(keytool.toString(), "-genkeypair",
+                "-alias", "communicate", "-keyalg", "EC", "-groupname", "secp256r1",
+                "-dname", "CN=localhost", "-ext", "SAN=dns:localhost,ip:127.0.0.1",
+                "-validity", "1", "-storetype", "PKCS12",
+                "-keystore", file.toString(), "-storepass", new String(PASSWORD))
+                .redirectErrorStream(true)
+                .redirectOutput(ProcessBuilder.Redirect.DISCARD)
+                .start();
+        if (process.waitFor() != 0) {
+            throw new IOException("keytool failed with exit code " + process.exitValue());
+        }
+
+        KeyStore keyStore = KeyStore.getInstance("PKCS12");
+        try (InputStream in = Files.newInputStream(file)) {
+            keyStore.load(in, PASSWORD);
+        }
+        KeyStore trustStore = KeyStore.getInstance("PKCS12");
+        trustStore.load(null, null);
+        trustStore.setCertificateEntry("communicate", keyStore.getCertificate("communicate"));
+        return new TestCertificates(keyStore, trustStore);
+    }
+
+    /**
+     * @return ein neuer Server-Kontext mit dem privaten Schlüssel
+     */
+    SSLContext serverContext() throws IOException {
+        return TlsConfig.createContext(keyStore, null, PASSWORD);
+    }
+
+    /**
+     * @return ein neuer Client-Kontext, der nur diesem Zertifikat vertraut (eigener Session-Cache)
+     */
+    SSLContext clientContext() throws IOException {
+        return TlsConfig.createContext(null, trustStore, PASSWORD);
+    }
+}
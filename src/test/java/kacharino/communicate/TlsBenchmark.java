@@ -0,0 +1,242 @@
+package kacharino.communicate;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSession;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Einfacher Benchmark, der den TLS-Modus mit dem Klartext-Modus vergleicht:
+ * <ul>
+ *   <li>Handshake-Rate: viele parallele Verbindungsaufbauten (Reconnect-Sturm) im Klartext,
+ *       mit vollständigem TLS-Handshake und mit Session-Resumption. Ob eine Verbindung tatsächlich
+ *       wiederaufgenommen wurde, wird an der Erzeugungszeit der Sitzung erkannt und als Quote ausgegeben.</li>
+ *   <li>Overhead pro Nachricht: Round-Trip-Zeit einer Zeile über eine bestehende Verbindung</li>
+ * </ul>
+ * Gegenstelle ist ein lokaler Echo-Server, der denselben Stream-Aufbau wie der {@link Server}
+ * nutzt; das selbstsignierte Zertifikat liefert {@link TestCertificates}.
+ * <p>
+ * Aufruf: {@code ./gradlew tlsBenchmark --args="[verbindungen] [nachrichten] [threads]"}
+ */
+class TlsBenchmark {
+
+    private static final String HOST = "127.0.0.1";
+    private static final String MESSAGE = "x".repeat(64);
+
+    private final int port;
+    private final SSLContext serverContext;
+
+    private TlsBenchmark(int port, SSLContext serverContext) {
+        this.port = port;
+        this.serverContext = serverContext;
+    }
+
+    /**
+     * Startet den Benchmark und gibt die Ergebnisse auf der Konsole aus.
+     *
+     * @param args optional: Anzahl Verbindungen, Anzahl Nachrichten, Anzahl Client-Threads
+     */
+    public static void main(String[] args) throws Exception {
+        int connections = args.length > 0 ? Integer.parseInt(args[0]) : 2000;
+        int messages = args.length > 1 ? Integer.parseInt(args[1]) : 50000;
+        int threads = args.length > 2 ? Integer.parseInt(args[2]) : Runtime.getRuntime().availableProcessors();
+
+        TestCertificates certificates = TestCertificates.create(Files.createTempDirectory("communicate-tls"));
+
+        try (ServerSocketChannel plainServer = ServerSocketChannel.open().bind(new InetSocketAddress(HOST, 0));
+             ServerSocketChannel tlsServer = ServerSocketChannel.open().bind(new InetSocketAddress(HOST, 0))) {
+            SSLContext serverContext = certificates.serverContext();
+            startEchoServer(plainServer, null);
+            startEchoServer(tlsServer, serverContext);
+
+            TlsBenchmark plain = new TlsBenchmark(plainServer.socket().getLocalPort(), null);
+            TlsBenchmark tls = new TlsBenchmark(tlsServer.socket().getLocalPort(), serverContext);
+
+            System.out.printf("Connections: %d, messages: %d, client threads: %d%n", connections, messages, threads);
+
+            // Aufwärmen, damit JIT und Session-Cache nicht in die Messung eingehen
+            SSLContext resumingContext = certificates.clientContext();
+            plain.connectStorm(connections / 10, threads, () -> null);
+            tls.connectStorm(connections / 10, threads, () -> resumingContext);
+
+            StormResult plainStorm = plain.connectStorm(connections, threads, () -> null);
+            StormResult fullStorm = tls.connectStorm(connections, threads, certificates::clientContext);
+            StormResult resumedStorm = tls.connectStorm(connections, threads, () -> resumingContext);
+
+            System.out.printf("Handshake rate plaintext:    %10.0f conn/s%n", plainStorm.rate());
+            System.out.printf("Handshake rate TLS full:     %10.0f conn/s (resumed %d/%d)%n",
+                    fullStorm.rate(), fullStorm.resumed(), connections);
+            System.out.printf("Handshake rate TLS reused:   %10.0f conn/s (resumed %d/%d = %.0f%%)%n",
+                    resumedStorm.rate(), resumedStorm.resumed(), connections,
+                    100.0 * resumedStorm.resumed() / connections);
+
+            plain.roundTrips(messages / 10, resumingContext);
+            tls.roundTrips(messages / 10, resumingContext);
+            double plainMicros = plain.roundTrips(messages, resumingContext);
+            double tlsMicros = tls.roundTrips(messages, resumingContext);
+
+            System.out.printf("Round trip plaintext:        %10.2f us/msg%n", plainMicros);
+            System.out.printf("Round trip TLS:              %10.2f us/msg%n", tlsMicros);
+            System.out.printf("TLS overhead per message:    %10.2f us/msg%n", tlsMicros - plainMicros);
+        }
+    }
+
+    /**
+     * Baut parallel {@code count} Verbindungen auf, sendet jeweils eine Zeile und wartet auf das Echo.
+     * Der Client-Kontext wird für jede Verbindung neu über {@code contexts} geholt; ein frischer
+     * Kontext erzwingt einen vollständigen Handshake, ein wiederverwendeter erlaubt Resumption.
+     * Eine Verbindung gilt als wiederaufgenommen, wenn ihre Sitzung vor dem Verbindungsaufbau erzeugt wurde.
+     *
+     * @return Verbindungen pro Sekunde und Anzahl tatsächlich wiederaufgenommener Sitzungen
+     */
+    private StormResult connectStorm(int count, int threads, ContextSupplier contexts) throws Exception {
+        // Frische Kontexte vorab erzeugen, damit das Laden des Truststores nicht mitgemessen wird
+        List<SSLContext> clientContexts = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            clientContexts.add(contexts.get());
+        }
+
+        ExecutorService pool = Executors.newFixedThreadPool(threads);
+        try {
+            List<Future<?>> results = new ArrayList<>(count);
+            AtomicInteger resumed = new AtomicInteger();
+            long start = System.nanoTime();
+            for (SSLContext clientContext : clientContexts) {
+                results.add(pool.submit(() -> {
+                    long connectStart = System.currentTimeMillis();
+                    try (Connection connection = connect(clientContext)) {
+                        if (connection.session() != null && connection.session().getCreationTime() < connectStart) {
+                            resumed.incrementAndGet();
+                        }
+                        connection.out.println(MESSAGE);
+                        connection.in.readLine();
+                    }
+                    return null;
+                }));
+            }
+            for (Future<?> result : results) {
+                result.get();
+            }
+            long elapsed = System.nanoTime() - start;
+            return new StormResult(count / (elapsed / 1e9), resumed.get());
+        } finally {
+            pool.shutdown();
+        }
+    }
+
+    /**
+     * Sendet {@code count} Zeilen nacheinander über eine Verbindung und wartet jeweils auf das Echo.
+     *
+     * @return Mikrosekunden pro Round Trip
+     */
+    private double roundTrips(int count, SSLContext clientContext) throws IOException {
+        try (Connection connection = connect(serverContext == null ? null : clientContext)) {
+            long start = System.nanoTime();
+            for (int i = 0; i < count; i++) {
+                connection.out.println(MESSAGE);
+                connection.in.readLine();
+            }
+            long elapsed = System.nanoTime() - start;
+            return elapsed / 1e3 / count;
+        }
+    }
+
+    private Connection connect(SSLContext clientContext) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, port));
+        channel.socket().setTcpNoDelay(true);
+        if (clientContext == null) {
+            return new Connection(channel, null,
+                    new BufferedReader(new InputStreamReader(channel.socket().getInputStream())),
+                    new PrintWriter(channel.socket().getOutputStream(), true));
+        }
+        TlsChannel tls = TlsChannel.forClient(channel, clientContext, HOST, port);
+        tls.handshake();
+        return new Connection(channel, tls.getSession(),
+                new BufferedReader(new InputStreamReader(tls.getInputStream())),
+                new PrintWriter(tls.getOutputStream(), true));
+    }
+
+    /**
+     * Startet einen Echo-Server, der pro Verbindung einen Thread nutzt (wie der {@link Server}).
+     */
+    private static void startEchoServer(ServerSocketChannel server, SSLContext sslContext) {
+        Thread acceptor = new Thread(() -> {
+            while (server.isOpen()) {
+                try {
+                    SocketChannel channel = server.accept();
+                    Thread handler = new Thread(() -> echo(channel, sslContext));
+                    handler.setDaemon(true);
+                    handler.start();
+                } catch (IOException e) {
+                    return;
+                }
+            }
+        });
+        acceptor.setDaemon(true);
+        acceptor.start();
+    }
+
+    private static void echo(SocketChannel channel, SSLContext sslContext) {
+        try {
+            channel.socket().setTcpNoDelay(true);
+            BufferedReader in;
+            PrintWriter out;
+            if (sslContext != null) {
+                TlsChannel tls = TlsChannel.forServer(channel, sslContext);
+                tls.handshake();
+                in = new BufferedReader(new InputStreamReader(tls.getInputStream()));
+                out = new PrintWriter(tls.getOutputStream(), true);
+            } else {
+                in = new BufferedReader(new InputStreamReader(channel.socket().getInputStream()));
+                out = new PrintWriter(channel.socket().getOutputStream(), true);
+            }
+            try (Connection connection = new Connection(channel, null, in, out)) {
+                String line;
+                while ((line = connection.in.readLine()) != null) {
+                    connection.out.println(line);
+                }
+            }
+        } catch (IOException e) {
+            // Client hat die Verbindung beendet
+        }
+    }
+
+    /**
+     * Liefert den Client-Kontext für eine Verbindung (null für Klartext).
+     */
+    private interface ContextSupplier {
+        SSLContext get() throws IOException;
+    }
+
+    /**
+     * Ergebnis eines Reconnect-Sturms.
+     */
+    private record StormResult(double rate, int resumed) {
+    }
+
+    /**
+     * Bündelt Kanal, TLS-Sitzung (null bei Klartext) und Streams einer Verbindung,
+     * damit sie gemeinsam geschlossen werden.
+     */
+    private record Connection(SocketChannel channel, SSLSession session, BufferedReader in, PrintWriter out)
+            implements AutoCloseable {
+        @Override
+        public void close() throws IOException {
+            out.close();
+            in.close();
+            channel.close();
+        }
+    }
+}
@@ -0,0 +1,229 @@
+package kacharino.communicate;
+
+import org.junit.jupiter.api.AfterEach;
+import org.junit.jupiter.api.BeforeAll;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLException;
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintWriter;
+import java.net.InetSocketAddress;
+import java.net.SocketTimeoutException;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Loopback-Tests für {@link TlsChannel} mit selbstsignierten Zertifikaten.
+ */
+class TlsChannelTest {
+
+    private static final String HOST = "127.0.0.1";
+
+    @TempDir
+    static Path tempDir;
+
+    private static TestCertificates certificates;
+
+    private ServerSocketChannel server;
+    private SSLContext serverContext;
+    private ExecutorService executor;
+
+    @BeforeAll
+    static void createCertificates() throws Exception {
+        certificates = TestCertificates.create(tempDir.resolve("trusted"));
+    }
+
+    @BeforeEach
+    void startServer() throws IOException {
+        server = ServerSocketChannel.open().bind(new InetSocketAddress(HOST, 0));
+        serverContext = certificates.serverContext();
+        executor = Executors.newCachedThreadPool();
+    }
+
+    @AfterEach
+    void stopServer() throws IOException {
+        server.close();
+        executor.shutdownNow();
+    }
+
+    @Test
+    void handshakeSucceedsAndEchoesLine() throws Exception {
+        acceptAndEcho();
+        TlsChannel tls = connect(certificates.clientContext());
+
+        assertEquals("TLSv1.3", tls.getSession().getProtocol());
+        assertEquals("hello", roundTrip(tls, "hello"));
+        tls.close();
+    }
+
+    @Test
+    void lineLongerThanOneRecordIsTransferredCompletely() throws Exception {
+        acceptAndEcho();
+        TlsChannel tls = connect(certificates.clientContext());
+
+        String line = "x".repeat(40_000);
+        assertEquals(line, roundTrip(tls, line));
+        tls.close();
+    }
+
+    @Test
+    void reconnectWithSameContextResumesSession() throws Exception {
+        SSLContext clientContext = certificates.clientContext();
+
+        acceptAndEcho();
+        TlsChannel first = connect(clientContext);
+        // Erst nach dem Lesen von Anwendungsdaten liegt das Session-Ticket beim Client vor
+        roundTrip(first, "first");
+        long creationTime = first.getSession().getCreationTime();
+        first.close();
+
+        acceptAndEcho();
+        TlsChannel second = connect(clientContext);
+        assertEquals(creationTime, second.getSession().getCreationTime());
+        assertEquals("second", roundTrip(second, "second"));
+        second.close();
+    }
+
+    @Test
+    void untrustedCertificateFailsHandshakeAndClosesChannel() throws Exception {
+        TestCertificates other = TestCertificates.create(tempDir.resolve("untrusted"));
+        Future<?> serverSide = acceptAndEcho();
+
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, port()));
+        TlsChannel tls = TlsChannel.forClient(channel, other.clientContext(), HOST, port());
+
+        assertThrows(SSLException.class, tls::handshake);
+        assertFalse(channel.isOpen());
+        // Der Server erhält den Alert und bricht seinerseits ab
+        serverSide.get(5, TimeUnit.SECONDS);
+    }
+
+    @Test
+    void stalledClientHitsHandshakeTimeout() throws Exception {
+        Future<?> serverSide = executor.submit(() -> {
+            SocketChannel channel = server.accept();
+            TlsChannel tls = TlsChannel.forServer(channel, serverContext);
+            assertThrows(SocketTimeoutException.class, () -> tls.handshake(300));
+            assertFalse(channel.isOpen());
+            return null;
+        });
+
+        // Verbindet sich per TCP, schickt aber nie ein ClientHello
+        SocketChannel stalled = SocketChannel.open(new InetSocketAddress(HOST, port()));
+        try {
+            serverSide.get(5, TimeUnit.SECONDS);
+        } finally {
+            stalled.close();
+        }
+    }
+
+    @Test
+    void closeFromAnotherThreadUnblocksReader() throws Exception {
+        acceptAndEcho();
+        TlsChannel tls = connect(certificates.clientContext());
+        InputStream in = tls.getInputStream();
+
+        Future<Integer> reader = executor.submit(() -> {
+            try {
+                return in.read();
+            } catch (IOException e) {
+                return -1;
+            }
+        });
+        Thread.sleep(200);
+        assertFalse(reader.isDone());
+
+        tls.close();
+        assertEquals(-1, (int) reader.get(5, TimeUnit.SECONDS));
+    }
+
+    @Test
+    void closeDoesNotWaitForBlockedWriter() throws Exception {
+        // Server liest nach dem Handshake nichts mehr, bis die Puffer voll sind
+        executor.submit(() -> {
+            SocketChannel channel = server.accept();
+            TlsChannel.forServer(channel, serverContext).handshake();
+            return channel;
+        });
+        TlsChannel tls = connect(certificates.clientContext());
+        OutputStream out = tls.getOutputStream();
+
+        AtomicLong written = new AtomicLong();
+        Future<?> writer = executor.submit(() -> {
+            byte[] chunk = new byte[64 * 1024];
+            while (true) {
+                out.write(chunk);
+                written.addAndGet(chunk.length);
+            }
+        });
+        // Warten, bis die Socket-Puffer voll sind und der Schreiber blockiert
+        long last = -1;
+        for (int i = 0; i < 50 && written.get() != last; i++) {
+            last = written.get();
+            Thread.sleep(300);
+        }
+        assertEquals(last, written.get());
+        assertFalse(writer.isDone());
+
+        assertTimeoutPreemptively(Duration.ofSeconds(5), tls::close);
+        Exception failure = assertThrows(Exception.class, () -> writer.get(5, TimeUnit.SECONDS));
+        assertInstanceOf(IOException.class, failure.getCause());
+    }
+
+    /**
+     * Nimmt eine Verbindung an und sendet jede empfangene Zeile zurück.
+     * Das Future endet, sobald der Client die Verbindung schließt oder der Handshake scheitert.
+     */
+    private Future<?> acceptAndEcho() {
+        return executor.submit(() -> {
+            try (SocketChannel channel = server.accept()) {
+                TlsChannel tls = TlsChannel.forServer(channel, serverContext);
+                tls.handshake();
+                BufferedReader in = new BufferedReader(new InputStreamReader(tls.getInputStream()));
+                PrintWriter out = new PrintWriter(tls.getOutputStream(), true);
+                String line;
+                while ((line = in.readLine()) != null) {
+                    out.println(line);
+                }
+                tls.close();
+            } catch (IOException e) {
+                // Client hat abgebrochen
+            }
+            return null;
+        });
+    }
+
+    private TlsChannel connect(SSLContext clientContext) throws IOException {
+        SocketChannel channel = SocketChannel.open(new InetSocketAddress(HOST, port()));
+        TlsChannel tls = TlsChannel.forClient(channel, clientContext, HOST, port());
+        tls.handshake();
+        return tls;
+    }
+
+    private String roundTrip(TlsChannel tls, String line) throws IOException {
+        PrintWriter out = new PrintWriter(tls.getOutputStream(), true);
+        BufferedReader in = new BufferedReader(new InputStreamReader(tls.getInputStream()));
+        out.println(line);
+        return in.readLine();
+    }
+
+    private int port() {
+        return server.socket().getLocalPort();
+    }
+}